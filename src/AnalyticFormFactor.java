@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * Closed-form form factors for simple configurations. Used as reference values
+ * to check the accuracy of the hemicube against.
+ * @author zyud
+ *
+ */
+public final class AnalyticFormFactor {
+
+	private AnalyticFormFactor() {} // private constructor method to avoid instantiation
+
+	/**
+	 * Calculates form factor between two identical, directly opposed (coaxial)
+	 * parallel rectangles.
+	 * @param sideLen1 length of one side of the rectangles
+	 * @param sideLen2 length of the other side of the rectangles
+	 * @param dist distance between the two rectangles
+	 * @return form factor from one rectangle to the other
+	 */
+	public static final double parallelRectangles(double sideLen1, double sideLen2,
+			double dist) {
+		double x = sideLen1 / dist;
+		double y = sideLen2 / dist;
+		double x2 = x * x;
+		double y2 = y * y;
+		double sqrt1X2 = Math.sqrt(1 + x2);
+		double sqrt1Y2 = Math.sqrt(1 + y2);
+
+		double sum = 0.5 * Math.log((1 + x2) * (1 + y2) / (1 + x2 + y2));
+		sum += x * sqrt1Y2 * Math.atan(x / sqrt1Y2);
+		sum += y * sqrt1X2 * Math.atan(y / sqrt1X2);
+		sum -= x * Math.atan(x);
+		sum -= y * Math.atan(y);
+
+		return 2 * sum / (Math.PI * x * y);
+	}
+
+	/**
+	 * Calculates form factor between two perpendicular rectangles sharing a
+	 * common edge.
+	 * @param edgeLen length of the common edge
+	 * @param fromWidth width of the shooting rectangle, perpendicular to the edge
+	 * @param toWidth width of the receiving rectangle, perpendicular to the edge
+	 * @return form factor from the shooting rectangle to the receiving rectangle
+	 */
+	public static final double perpendicularRectangles(double edgeLen,
+			double fromWidth, double toWidth) {
+		double h = toWidth / edgeLen;
+		double w = fromWidth / edgeLen;
+		double h2 = h * h;
+		double w2 = w * w;
+		double sqrtH2W2 = Math.sqrt(h2 + w2);
+
+		double sum = w * Math.atan(1 / w);
+		sum += h * Math.atan(1 / h);
+		sum -= sqrtH2W2 * Math.atan(1 / sqrtH2W2);
+
+		// log terms are expanded to avoid overflow of the large exponents
+		double log = Math.log((1 + w2) * (1 + h2) / (1 + w2 + h2));
+		log += w2 * Math.log(w2 * (1 + w2 + h2) / ((1 + w2) * (w2 + h2)));
+		log += h2 * Math.log(h2 * (1 + h2 + w2) / ((1 + h2) * (h2 + w2)));
+		sum += log / 4;
+
+		return sum / (Math.PI * w);
+	}
+
+	/**
+	 * Calculates form factors between the six inner faces of a closed box. Faces
+	 * are ordered -x, +x, -y, +y, -z, +z. Each row of the result sums to 1.
+	 * @param lenX length of box along x
+	 * @param lenY length of box along y
+	 * @param lenZ length of box along z
+	 * @return 6x6 array where [i][j] is the form factor from face i to face j
+	 */
+	public static final double[][] boxFormFactors(double lenX, double lenY,
+			double lenZ) {
+		double[] len = {lenX, lenY, lenZ};
+		double[][] formFactors = new double[6][6];
+
+		for (int i = 0; i < 6; i++) {
+			int axisI = i / 2;
+			// the two sides of face i, perpendicular to its normal
+			double sideA = len[(axisI + 1) % 3];
+			double sideB = len[(axisI + 2) % 3];
+
+			for (int j = 0; j < 6; j++) {
+				int axisJ = j / 2;
+				if (i == j) {
+					continue; // a flat face cannot see itself
+				} else if (axisI == axisJ) {
+					formFactors[i][j] = parallelRectangles(sideA, sideB, len[axisI]);
+				} else {
+					// common edge runs along the axis normal to neither face
+					int edgeAxis = 3 - axisI - axisJ;
+					formFactors[i][j] = perpendicularRectangles(len[edgeAxis],
+							len[axisJ], len[axisI]);
+				}
+			}
+		}
+		return formFactors;
+	}
+
+	/**
+	 * Calculates the radiosity of every patch in a closed enclosure where all
+	 * patches share the same emission and reflectance. Since every row of form
+	 * factors sums to 1, B = E + rho * B, independent of the geometry.
+	 * @param emission emitted light of each patch
+	 * @param reflectance reflectance of each patch, between 0 and 1
+	 * @return radiosity of each patch
+	 */
+	public static final double uniformEnclosureRadiosity(double emission,
+			double reflectance) {
+		return emission / (1 - reflectance);
+	}
+
+	/**
+	 * Finds the largest deviation from 1 of the row sums of a form factor matrix
+	 * of a closed enclosure.
+	 * @param formFactors form factor matrix, [i][j] is from patch i to patch j
+	 * @return max absolute value of (row sum - 1)
+	 */
+	public static final double maxRowSumError(double[][] formFactors) {
+		double maxError = 0.0;
+
+		for (double[] row : formFactors) {
+			double sum = 0.0;
+			for (double f : row) {
+				sum += f;
+			}
+			maxError = Math.max(maxError, Math.abs(sum - 1));
+		}
+		return maxError;
+	}
+
+	/**
+	 * Calculates form factor from a differential area to a convex polygon, using
+	 * the contour integral over the polygon edges. Parts of the polygon behind
+	 * the differential area are clipped off first.
+	 * @param pt location of the differential area
+	 * @param normal unit normal of the differential area
+	 * @param polygon vertices of the polygon, in order around its boundary
+	 * @return form factor from the differential area to the polygon
+	 */
+	public static final double pointToPolygon(Vector3D pt, Vector3D normal,
+			Vector3D[] polygon) {
+		ArrayList<Vector3D> clipped = clipToHemisphere(pt, normal, polygon);
+		int n = clipped.size();
+		double sum = 0.0;
+
+		for (int i = 0; i < n; i++) {
+			Vector3D r1 = clipped.get(i).subtract(pt);
+			Vector3D r2 = clipped.get((i + 1) % n).subtract(pt);
+			Vector3D cross = r1.crossProduct(r2);
+			if (cross.getNorm() == 0) {
+				continue; // edge points straight at pt, contributes nothing
+			}
+			double gamma = Vector3D.angle(r1, r2);
+			sum += normal.dotProduct(cross.normalize()) * gamma;
+		}
+		// sign depends on the winding of the vertices
+		return Math.abs(sum) / (2 * Math.PI);
+	}
+
+	/**
+	 * Calculates form factor from a quad to a convex polygon by averaging the
+	 * differential area form factor over a grid of sample points on the quad,
+	 * weighted by the area each sample covers. No occlusion is considered.
+	 * @param from vertices of the shooting quad, in order around its boundary
+	 * @param normal unit normal of the shooting quad
+	 * @param to vertices of the receiving polygon, in order around its boundary
+	 * @param samples number of samples along each side of the quad
+	 * @return form factor from the quad to the polygon
+	 */
+	public static final double quadToPolygon(Vector3D[] from, Vector3D normal,
+			Vector3D[] to, int samples) {
+		double sum = 0.0;
+		double totalArea = 0.0;
+
+		for (int i = 0; i < samples; i++) {
+			for (int j = 0; j < samples; j++) {
+				// corners of the sample cell, by bilinear interpolation
+				Vector3D c00 = bilinear(from, (double) i / samples,
+						(double) j / samples);
+				Vector3D c11 = bilinear(from, (double) (i + 1) / samples,
+						(double) (j + 1) / samples);
+				Vector3D c10 = bilinear(from, (double) (i + 1) / samples,
+						(double) j / samples);
+				Vector3D c01 = bilinear(from, (double) i / samples,
+						(double) (j + 1) / samples);
+				double area = 0.5 * c11.subtract(c00).crossProduct(
+						c01.subtract(c10)).getNorm();
+				Vector3D pt = bilinear(from, (i + 0.5) / samples,
+						(j + 0.5) / samples);
+
+				sum += area * pointToPolygon(pt, normal, to);
+				totalArea += area;
+			}
+		}
+		return sum / totalArea;
+	}
+
+	/**
+	 * Finds the point at (u, v) on a quad, where (0, 0) is the first vertex and
+	 * (1, 1) the third.
+	 * @param quad vertices in order around the boundary
+	 * @param u fraction along the side from the first to the second vertex
+	 * @param v fraction along the side from the first to the fourth vertex
+	 * @return point on the quad
+	 */
+	private static Vector3D bilinear(Vector3D[] quad, double u, double v) {
+		return new Vector3D((1 - u) * (1 - v), quad[0], u * (1 - v), quad[1],
+				u * v, quad[2], (1 - u) * v, quad[3]);
+	}
+
+	/**
+	 * Clips a polygon against the plane of a differential area, keeping only the
+	 * part in front of it.
+	 * @param pt location of the differential area
+	 * @param normal unit normal of the differential area
+	 * @param polygon vertices of the polygon, in order around its boundary
+	 * @return vertices of the clipped polygon, empty if fully behind
+	 */
+	private static ArrayList<Vector3D> clipToHemisphere(Vector3D pt,
+			Vector3D normal, Vector3D[] polygon) {
+		ArrayList<Vector3D> clipped = new ArrayList<>();
+
+		for (int i = 0; i < polygon.length; i++) {
+			Vector3D cur = polygon[i];
+			Vector3D next = polygon[(i + 1) % polygon.length];
+			double curDist = normal.dotProduct(cur.subtract(pt));
+			double nextDist = normal.dotProduct(next.subtract(pt));
+
+			if (curDist >= 0) {
+				clipped.add(cur);
+			}
+			if ((curDist > 0 && nextDist < 0) || (curDist < 0 && nextDist > 0)) {
+				double t = curDist / (curDist - nextDist);
+				clipped.add(cur.add(t, next.subtract(cur)));
+			}
+		}
+		return clipped;
+	}
+}
@@ -23,8 +23,8 @@ public class Patch {
 	}
 	
 	/**
-	 * VERIFY WITH AUTOCAD!!!
-	 * Calculates the coords of the center point of a Patch.
+	 * Calculates the coords of the center point of a Patch, as the average of its
+	 * four coords. The result does not depend on the order of the coords.
 	 * @param coords
 	 * @return coords of the center point
 	 */
@@ -40,7 +40,6 @@ public class Patch {
 	}
 	
 	/**
-	 * VERIFY WITH AUTOCAD!!!
 	 * Calculates the coords of the midpoint between two points
 	 * @param pt1
 	 * @param pt2
@@ -0,0 +1,166 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.DecompositionSolver;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Solves the radiosity equation B = E + rho * F * B for a room.
+ * The system matrix is factorized once, so many emission vectors (e.g. one per
+ * hour of sky conditions) can be solved against the same room.
+ * The factorization is dense, so memory grows with the square of the patch
+ * count: about 800 MB is kept for 10,000 patches. While the solver is built,
+ * the caller's form factors, I - rho * F and the factorization's own copy
+ * exist at once, so peak memory is about 3 times that (2.4 GB).
+ * @author zyud
+ *
+ */
+public class RadiositySolver {
+	private static final int BLOCKSIZE = 168; // one week of hourly columns per block
+	private int patchCount;
+	private DecompositionSolver solver; // LU factorization of (I - rho * F)
+
+	/**
+	 * @param formFactors n x n matrix, [i][j] is the form factor from patch i
+	 * to patch j
+	 * @param patches the n patches of the room, in the same order as formFactors
+	 */
+	public RadiositySolver(RealMatrix formFactors, List<Patch> patches) {
+		patchCount = patches.size();
+		if (formFactors.getRowDimension() != patchCount ||
+				formFactors.getColumnDimension() != patchCount) {
+			throw new IllegalArgumentException("form factor matrix must be " +
+				patchCount + "x" + patchCount);
+		}
+
+		// build I - rho * F in a single copy of the form factors, one row per patch
+		double[][] system = formFactors.getData();
+		for (int i = 0; i < patchCount; i++) {
+			double reflectance = patches.get(i).getReflectance();
+			for (int j = 0; j < patchCount; j++) {
+				system[i][j] *= -1 * reflectance;
+			}
+			system[i][i] += 1.0;
+		}
+		solver = new LUDecomposition(new Array2DRowRealMatrix(system, false))
+				.getSolver();
+	}
+
+	/**
+	 * Solves for radiosity given a single emission vector.
+	 * @param emission emitted light of each patch
+	 * @return radiosity of each patch
+	 */
+	public double[] solve(double[] emission) {
+		if (emission.length != patchCount) {
+			throw new IllegalArgumentException("emission vector must have " +
+				patchCount + " values");
+		}
+		RealVector b = solver.solve(MatrixUtils.createRealVector(emission));
+		return b.toArray();
+	}
+
+	/**
+	 * Solves for radiosity given many emission vectors at once.
+	 * @param emissions n x m matrix, each column is one emission vector
+	 * @return n x m matrix, each column is the radiosity for that emission vector
+	 */
+	public RealMatrix solve(RealMatrix emissions) {
+		checkRows(emissions);
+		return solver.solve(emissions);
+	}
+
+	/**
+	 * Solves for radiosity given many emission vectors and writes the results to
+	 * a CSV file. See solveToFile(Iterator, String).
+	 * @param emissions n x m matrix, each column is one emission vector (e.g.
+	 * m = 8760 for an hourly annual simulation)
+	 * @param fileName path of the CSV file to write
+	 * @throws IOException
+	 */
+	public void solveToFile(RealMatrix emissions, String fileName)
+			throws IOException {
+		checkRows(emissions);
+		Iterator<double[]> columns = new Iterator<double[]>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < emissions.getColumnDimension();
+			}
+
+			@Override
+			public double[] next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return emissions.getColumn(next++);
+			}
+		};
+		solveToFile(columns, fileName);
+	}
+
+	/**
+	 * Solves for radiosity given a stream of emission vectors and writes the
+	 * results to a CSV file as they are computed. Vectors are read and solved in
+	 * blocks, so neither the full set of emissions nor the full set of results is
+	 * held in memory.
+	 * Each line of the file is the index of the emission vector followed by the
+	 * radiosity of each patch.
+	 * @param emissions emission vectors, e.g. one per hour of the year, each with
+	 * one value per patch
+	 * @param fileName path of the CSV file to write
+	 * @throws IOException
+	 */
+	public void solveToFile(Iterator<double[]> emissions, String fileName)
+			throws IOException {
+		RealMatrix block = MatrixUtils.createRealMatrix(patchCount, BLOCKSIZE);
+		int caseCount = 0;
+
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+			while (emissions.hasNext()) {
+				// fill the next block of columns
+				int blockCount = 0;
+				while (blockCount < BLOCKSIZE && emissions.hasNext()) {
+					double[] emission = emissions.next();
+					if (emission.length != patchCount) {
+						throw new IllegalArgumentException("emission vector " +
+							(caseCount + blockCount) + " must have " + patchCount +
+							" values");
+					}
+					block.setColumn(blockCount, emission);
+					blockCount++;
+				}
+
+				RealMatrix result = solver.solve(block.getSubMatrix(0,
+						patchCount - 1, 0, blockCount - 1));
+
+				for (int j = 0; j < blockCount; j++) {
+					StringBuilder line = new StringBuilder();
+					line.append(caseCount + j);
+					for (int i = 0; i < patchCount; i++) {
+						line.append(',').append(result.getEntry(i, j));
+					}
+					writer.write(line.toString());
+					writer.newLine();
+				}
+				caseCount += blockCount;
+			}
+		}
+	}
+
+	private void checkRows(RealMatrix emissions) {
+		if (emissions.getRowDimension() != patchCount) {
+			throw new IllegalArgumentException("emission matrix must have " +
+				patchCount + " rows");
+		}
+	}
+}
@@ -0,0 +1,695 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * Accuracy and performance checks against closed-form configurations.
+ * Each case is warmed up, then repeated, and the median time is reported along
+ * with the error. Exits with status 1 if any case exceeds its error budget or
+ * its time budget. Time budgets can be scaled for slower machines with
+ * -Dsuite.timeScale=2.
+ * Run from the project root with:
+ * javac -d bin -cp lib/commons-math3-3.6.1.jar src/AnalyticFormFactor.java
+ *     src/Patch.java src/Utils.java src/RadiositySolver.java
+ *     src/SensorGrid.java src/ReferenceSuite.java
+ * java -cp bin:lib/commons-math3-3.6.1.jar ReferenceSuite
+ * @author zyud
+ *
+ */
+public class ReferenceSuite {
+	private static final int WARMUP = 3; // untimed runs before measuring
+	private static final int REPS = 7; // timed runs, median is reported
+	private static final double ENGINE_BUDGET = 0.01; // 1% relative error
+	private static final double TIMESCALE = Double.parseDouble(
+			System.getProperty("suite.timeScale", "1"));
+	private static int failures = 0;
+
+	/**
+	 * One check. Returns its error, so it can be run repeatedly for timing.
+	 */
+	private interface Case {
+		double run();
+	}
+
+	public static void main(String[] args) {
+		checkPatchCenter();
+		checkClosedForms();
+		checkBoxes();
+		checkSolver();
+		checkSolverStreaming();
+		checkSolverArguments();
+		checkSensorGrid();
+		checkSensorOcclusion();
+		checkSensorSmallOccluders();
+		checkSensorArguments();
+		checkEngine();
+
+		System.out.println(failures == 0 ? "ALL PASSED" : failures + " FAILED");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs a case WARMUP times untimed, then REPS times timed. Prints the largest
+	 * error and the median time, and records a failure if either is over budget.
+	 * @param name
+	 * @param c case to run
+	 * @param errorBudget max allowed error
+	 * @param timeBudget max allowed median time in ms, before TIMESCALE
+	 * @return largest error seen
+	 */
+	private static double measure(String name, Case c, double errorBudget,
+			double timeBudget) {
+		for (int r = 0; r < WARMUP; r++) {
+			c.run();
+		}
+		double error = 0.0;
+		double[] ms = new double[REPS];
+		for (int r = 0; r < REPS; r++) {
+			long start = System.nanoTime();
+			error = Math.max(error, c.run());
+			ms[r] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(ms);
+		double median = ms[REPS / 2];
+
+		report(name, error, errorBudget, median, timeBudget * TIMESCALE);
+		return error;
+	}
+
+	/**
+	 * Prints one line of results and records a failure if over either budget.
+	 * @param name
+	 * @param error
+	 * @param errorBudget
+	 * @param ms median time
+	 * @param timeBudget
+	 */
+	private static void report(String name, double error, double errorBudget,
+			double ms, double timeBudget) {
+		boolean pass = error <= errorBudget && ms <= timeBudget;
+		if (!pass) {
+			failures++;
+		}
+		// an infinite error budget marks a case reported for comparison only
+		String errorLimit = Double.isInfinite(errorBudget) ? "  -  " :
+			String.format("%.0e", errorBudget);
+		System.out.printf("%-52s error %.2e (<= %s) %9.3f ms (<= %6.1f)  %s%n",
+				name, error, errorLimit, ms, timeBudget, pass ? "PASS" : "FAIL");
+	}
+
+	/**
+	 * Patch center is the average of its four coords, so it must not depend on
+	 * vertex order, even for a quad that is not a rectangle.
+	 */
+	private static void checkPatchCenter() {
+		Vector3D[] quad = {new Vector3D(0, 0, 1), new Vector3D(4, 0, 1),
+				new Vector3D(3, 2, 1), new Vector3D(0.5, 3, 1)};
+		Vector3D expected = new Vector3D(7.5 / 4, 5.0 / 4, 1);
+
+		measure("patch center, trapezoid, all 24 vertex orders", () -> {
+			double maxError = 0.0;
+			for (int[] order : permutations(4)) {
+				Vector3D[] coords = new Vector3D[4];
+				for (int i = 0; i < 4; i++) {
+					coords[i] = quad[order[i]];
+				}
+				Patch p = new Patch(coords, Vector3D.PLUS_K, 0.5);
+				maxError = Math.max(maxError, p.getCenter().distance(expected));
+			}
+			return maxError;
+		}, 1e-15, 1);
+	}
+
+	/**
+	 * Compares the closed forms against published values for a unit cube.
+	 */
+	private static void checkClosedForms() {
+		measure("unit cube, opposite faces", () -> Math.abs(
+				AnalyticFormFactor.parallelRectangles(1, 1, 1) - 0.19982), 1e-5, 0.1);
+		measure("unit cube, adjacent faces", () -> Math.abs(
+				AnalyticFormFactor.perpendicularRectangles(1, 1, 1) - 0.20004), 1e-5,
+				0.1);
+	}
+
+	/**
+	 * Checks that the closed-form box form factors sum to 1 along each row and
+	 * obey reciprocity, A_i * F_ij = A_j * F_ji.
+	 */
+	private static void checkBoxes() {
+		double[][] boxes = {{1, 1, 1}, {2, 3, 5}, {10, 0.5, 3}};
+
+		for (double[] box : boxes) {
+			String name = "closed-form box " + box[0] + "x" + box[1] + "x" + box[2];
+			measure(name + ", row sums", () -> AnalyticFormFactor.maxRowSumError(
+					AnalyticFormFactor.boxFormFactors(box[0], box[1], box[2])), 1e-12,
+					1);
+
+			double[] area = {box[1] * box[2], box[1] * box[2], box[0] * box[2],
+					box[0] * box[2], box[0] * box[1], box[0] * box[1]};
+			measure(name + ", reciprocity", () -> maxReciprocityError(
+					AnalyticFormFactor.boxFormFactors(box[0], box[1], box[2]), area),
+					1e-12, 1);
+		}
+	}
+
+	/**
+	 * Solves a uniform box with RadiositySolver, singly and batched, and compares
+	 * against the closed-form enclosure radiosity.
+	 */
+	private static void checkSolver() {
+		double reflectance = 0.6;
+		List<Patch> patches = createBoxPatches(reflectance);
+		RealMatrix formFactors = MatrixUtils.createRealMatrix(
+				AnalyticFormFactor.boxFormFactors(2, 3, 5));
+
+		measure("solver, uniform box", () -> {
+			RadiositySolver solver = new RadiositySolver(formFactors, patches);
+			double[] emission = new double[6];
+			Arrays.fill(emission, 1.0);
+			double expected = AnalyticFormFactor.uniformEnclosureRadiosity(1.0,
+					reflectance);
+			double maxError = 0.0;
+			for (double b : solver.solve(emission)) {
+				maxError = Math.max(maxError, Math.abs(b - expected));
+			}
+			return maxError;
+		}, 1e-12, 5);
+
+		// each hour scales the same uniform emission
+		RadiositySolver solver = new RadiositySolver(formFactors, patches);
+		int hours = 8760;
+		RealMatrix emissions = MatrixUtils.createRealMatrix(6, hours);
+		for (int j = 0; j < hours; j++) {
+			for (int i = 0; i < 6; i++) {
+				emissions.setEntry(i, j, j);
+			}
+		}
+		measure("solver, uniform box, 8760 batched columns", () -> {
+			RealMatrix results = solver.solve(emissions);
+			double maxError = 0.0;
+			for (int j = 0; j < hours; j++) {
+				double expected = AnalyticFormFactor.uniformEnclosureRadiosity(j,
+						reflectance);
+				for (int i = 0; i < 6; i++) {
+					maxError = Math.max(maxError, Math.abs(results.getEntry(i, j) -
+							expected) / Math.max(expected, 1.0));
+				}
+			}
+			return maxError;
+		}, 1e-12, 200);
+	}
+
+	/**
+	 * Streams emission vectors through solveToFile, enough for two full blocks
+	 * and a partial last block, and reads the CSV back. Hour h emits h from every
+	 * patch, so every radiosity on line h must be h / (1 - rho).
+	 */
+	private static void checkSolverStreaming() {
+		double reflectance = 0.6;
+		RadiositySolver solver = new RadiositySolver(MatrixUtils.createRealMatrix(
+				AnalyticFormFactor.boxFormFactors(2, 3, 5)),
+				createBoxPatches(reflectance));
+		int hours = 400; // 2 blocks of 168 and one of 64
+
+		measure("solver, " + hours + " streamed columns read back from CSV",
+				() -> {
+			Iterator<double[]> emissions = new Iterator<double[]>() {
+				private int hour = 0;
+
+				@Override
+				public boolean hasNext() {
+					return hour < hours;
+				}
+
+				@Override
+				public double[] next() {
+					double[] emission = new double[6];
+					Arrays.fill(emission, hour++);
+					return emission;
+				}
+			};
+
+			try {
+				File file = File.createTempFile("radiosity", ".csv");
+				file.deleteOnExit();
+				solver.solveToFile(emissions, file.getPath());
+				return readBackError(file, hours, reflectance);
+			} catch (IOException e) {
+				System.out.println(e);
+				return Double.POSITIVE_INFINITY;
+			}
+		}, 1e-12, 100);
+	}
+
+	/**
+	 * Reads a solveToFile CSV and finds the largest relative error against the
+	 * uniform enclosure radiosity.
+	 * @param file
+	 * @param hours expected number of lines
+	 * @param reflectance
+	 * @return largest error, infinite if lines are missing or out of order
+	 * @throws IOException
+	 */
+	private static double readBackError(File file, int hours, double reflectance)
+			throws IOException {
+		double maxError = 0.0;
+		int lineCount = 0;
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] values = line.split(",");
+				if (Integer.parseInt(values[0]) != lineCount || values.length != 7) {
+					return Double.POSITIVE_INFINITY;
+				}
+				double expected = AnalyticFormFactor.uniformEnclosureRadiosity(
+						lineCount, reflectance);
+				for (int i = 1; i < values.length; i++) {
+					maxError = Math.max(maxError, Math.abs(Double.parseDouble(
+							values[i]) - expected) / Math.max(expected, 1.0));
+				}
+				lineCount++;
+			}
+		}
+		return lineCount == hours ? maxError : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Every public solver entry point must reject emissions of the wrong size
+	 * with IllegalArgumentException.
+	 */
+	private static void checkSolverArguments() {
+		RadiositySolver solver = new RadiositySolver(MatrixUtils.createRealMatrix(
+				AnalyticFormFactor.boxFormFactors(2, 3, 5)), createBoxPatches(0.6));
+		String fileName = new File(System.getProperty("java.io.tmpdir"),
+				"radiosity_rejected.csv").getPath();
+
+		expectRejected("solver, solve() with 5 values", () ->
+				solver.solve(new double[5]));
+		expectRejected("solver, solve() with 7 rows", () ->
+				solver.solve(MatrixUtils.createRealMatrix(7, 3)));
+		expectRejected("solver, solveToFile() with 7 rows", () -> {
+			try {
+				solver.solveToFile(MatrixUtils.createRealMatrix(7, 3), fileName);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		expectRejected("solver, solveToFile() with a 5 value vector", () -> {
+			try {
+				solver.solveToFile(Arrays.asList(new double[6], new double[5])
+						.iterator(), fileName);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		new File(fileName).delete();
+	}
+
+	/**
+	 * Records a failure unless the action throws IllegalArgumentException itself,
+	 * with its own message, rather than a library exception.
+	 * @param name
+	 * @param action
+	 */
+	private static void expectRejected(String name, Runnable action) {
+		String result;
+		try {
+			action.run();
+			result = "nothing thrown";
+		} catch (RuntimeException e) {
+			// commons math exceptions subclass IllegalArgumentException, so the
+			// class must match exactly
+			result = e.getClass() == IllegalArgumentException.class ? null :
+				e.getClass().getSimpleName() + " thrown";
+		}
+		if (result != null) {
+			failures++;
+		}
+		System.out.printf("%-52s IllegalArgumentException expected, %s  %s%n",
+				name, result == null ? "thrown" : result, result == null ? "PASS" :
+				"FAIL");
+	}
+
+	/**
+	 * In a closed box with uniform radiosity, every sensor sees radiosity 1 over
+	 * its whole hemisphere, so illuminance must be 1.
+	 */
+	private static void checkSensorGrid() {
+		List<Patch> patches = createRoom(4, 5, 3, 0.25);
+		double[] radiosity = new double[patches.size()];
+		Arrays.fill(radiosity, 1.0);
+		SensorGrid grid = SensorGrid.workPlane(0.125, 0.125, 3.875, 4.875, 0.25,
+				0.76, patches);
+
+		measure("sensor grid, uniform box, " + patches.size() + " patches, " +
+				grid.getPoints().length + " sensors", () -> {
+			double maxError = 0.0;
+			for (double e : grid.calcIlluminance(radiosity)) {
+				maxError = Math.max(maxError, Math.abs(e - 1));
+			}
+			return maxError;
+		}, 1e-9, 5000);
+	}
+
+	/**
+	 * A plate partly shadows the lit ceiling from a sensor. Seen from the sensor,
+	 * the shadow on the ceiling covers the same solid angle as the plate, so the
+	 * exact illuminance is F(ceiling) - F(plate).
+	 */
+	private static void checkSensorOcclusion() {
+		List<Patch> patches = createRoom(6, 4, 3, 1.0);
+		int ceilingCount = 24; // ceiling is added last by createRoom
+		Vector3D[] plate = Utils.getPtsFromCenter(new Vector3D(3.3, 2, 1.5),
+				Vector3D.PLUS_I, Vector3D.PLUS_J, 1, 1);
+		patches.add(new Patch(plate, Vector3D.MINUS_K, 0.5));
+		double[] radiosity = new double[patches.size()];
+		for (int j = patches.size() - 1 - ceilingCount; j < patches.size() - 1;
+				j++) {
+			radiosity[j] = 1.0;
+		}
+
+		Vector3D pt = new Vector3D(3, 2, 0.76);
+		Vector3D[] ceiling = {new Vector3D(0, 0, 3), new Vector3D(6, 0, 3),
+				new Vector3D(6, 4, 3), new Vector3D(0, 4, 3)};
+		double exact = AnalyticFormFactor.pointToPolygon(pt, Vector3D.PLUS_K,
+				ceiling) - AnalyticFormFactor.pointToPolygon(pt, Vector3D.PLUS_K,
+				orderedCoords(patches.get(patches.size() - 1)));
+
+		SensorGrid grid = new SensorGrid(new Vector3D[] {pt},
+				new Vector3D[] {Vector3D.PLUS_K}, patches);
+		measure("sensor grid, plate partly shadowing 1 m patches", () ->
+				Math.abs(grid.calcIlluminance(radiosity)[0] - exact) / exact, 0.01,
+				50);
+	}
+
+	/**
+	 * Five small plates sit exactly on the rays to the visibility samples of a
+	 * single 2x2 m lit ceiling patch. All samples are blocked, yet most of the
+	 * ceiling is visible. Exact illuminance is F(ceiling) minus the form factor
+	 * of each plate's shadow on the ceiling, clipped to the ceiling.
+	 */
+	private static void checkSensorSmallOccluders() {
+		Vector3D pt = new Vector3D(1, 1, 0);
+		double ceilingZ = 3;
+		double plateZ = 1.5;
+		double plateLen = 0.05;
+		List<Patch> patches = new ArrayList<>();
+		patches.add(new Patch(Utils.getPtsFromCenter(new Vector3D(1, 1, ceilingZ),
+				Vector3D.PLUS_I, Vector3D.PLUS_J, 2, 2), Vector3D.MINUS_K, 0.5));
+
+		// samples are the center and the corners moved 1% toward the center
+		double[][] samples = {{1, 1}, {0.01, 0.01}, {1.99, 0.01}, {1.99, 1.99},
+				{0.01, 1.99}};
+		double scale = (plateZ - pt.getZ()) / (ceilingZ - pt.getZ());
+		double exact = AnalyticFormFactor.pointToPolygon(pt, Vector3D.PLUS_K,
+				orderedCoords(patches.get(0)));
+		for (double[] sample : samples) {
+			double x = pt.getX() + (sample[0] - pt.getX()) * scale;
+			double y = pt.getY() + (sample[1] - pt.getY()) * scale;
+			patches.add(new Patch(Utils.getPtsFromCenter(new Vector3D(x, y, plateZ),
+					Vector3D.PLUS_I, Vector3D.PLUS_J, plateLen, plateLen),
+					Vector3D.MINUS_K, 0.5));
+
+			// shadow of the plate on the ceiling plane, clipped to the ceiling
+			double half = plateLen / 2 / scale;
+			double minX = Math.max(0, sample[0] - half);
+			double maxX = Math.min(2, sample[0] + half);
+			double minY = Math.max(0, sample[1] - half);
+			double maxY = Math.min(2, sample[1] + half);
+			exact -= AnalyticFormFactor.pointToPolygon(pt, Vector3D.PLUS_K,
+					new Vector3D[] {new Vector3D(minX, minY, ceilingZ),
+					new Vector3D(maxX, minY, ceilingZ), new Vector3D(maxX, maxY,
+					ceilingZ), new Vector3D(minX, maxY, ceilingZ)});
+		}
+		double[] radiosity = new double[patches.size()];
+		radiosity[0] = 1.0;
+
+		SensorGrid grid = new SensorGrid(new Vector3D[] {pt},
+				new Vector3D[] {Vector3D.PLUS_K}, patches);
+		double result = exact;
+		measure("sensor grid, 5 small plates on all sample rays", () ->
+				Math.abs(grid.calcIlluminance(radiosity)[0] - result) / result, 0.02,
+				50);
+	}
+
+	/**
+	 * Sensor grid entry points must reject bad arguments with
+	 * IllegalArgumentException.
+	 */
+	private static void checkSensorArguments() {
+		List<Patch> patches = createRoom(2, 2, 2, 1.0);
+		SensorGrid grid = SensorGrid.workPlane(0.5, 0.5, 1.5, 1.5, 0.5, 0.76,
+				patches);
+		String fileName = new File(System.getProperty("java.io.tmpdir"),
+				"sensors_rejected.csv").getPath();
+
+		expectRejected("sensor grid, workPlane() with spacing 0", () ->
+				SensorGrid.workPlane(0, 0, 1, 1, 0, 0.76, patches));
+		expectRejected("sensor grid, workPlane() with maxX < minX", () ->
+				SensorGrid.workPlane(1, 0, 0, 1, 0.5, 0.76, patches));
+		expectRejected("sensor grid, workPlane() with 1e12 sensors", () ->
+				SensorGrid.workPlane(0, 0, 1e6, 1e6, 1e-3, 0.76, patches));
+		expectRejected("sensor grid, writeCsv() with too few values", () -> {
+			try {
+				grid.writeCsv(new double[1], fileName);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		expectRejected("sensor grid, writeBinary() with too few values", () -> {
+			try {
+				grid.writeBinary(new double[1], fileName);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		new File(fileName).delete();
+	}
+
+	/**
+	 * Runs the quad sampling form factor engine at each resolution on parallel
+	 * and perpendicular rectangle pairs, and reports the largest relative error
+	 * against the closed forms and the time taken. Fails if no resolution meets
+	 * ENGINE_BUDGET. The fastest resolution that does is then used to build the
+	 * form factor matrix of a meshed box, whose rows must sum to 1 and which must
+	 * obey reciprocity.
+	 */
+	private static void checkEngine() {
+		Vector3D[] floor = {new Vector3D(0, 0, 0), new Vector3D(1, 0, 0),
+				new Vector3D(1, 1, 0), new Vector3D(0, 1, 0)};
+		Vector3D[] ceiling = {new Vector3D(0, 0, 1), new Vector3D(1, 0, 1),
+				new Vector3D(1, 1, 1), new Vector3D(0, 1, 1)};
+		Vector3D[] bigFloor = {new Vector3D(0, 0, 0), new Vector3D(2, 0, 0),
+				new Vector3D(2, 2, 0), new Vector3D(0, 2, 0)};
+		Vector3D[] bigCeiling = {new Vector3D(0, 0, 1), new Vector3D(2, 0, 1),
+				new Vector3D(2, 2, 1), new Vector3D(0, 2, 1)};
+		Vector3D[] wall = {new Vector3D(0, 0, 0), new Vector3D(0, 1, 0),
+				new Vector3D(0, 1, 1), new Vector3D(0, 0, 1)};
+		Vector3D[] tallWall = {new Vector3D(0, 0, 0), new Vector3D(0, 1, 0),
+				new Vector3D(0, 1, 2), new Vector3D(0, 0, 2)};
+		Vector3D up = Vector3D.PLUS_K;
+
+		int[] resolutions = {1, 2, 4, 8, 16};
+		double[] timeBudgets = {0.5, 1, 2, 5, 20};
+		int chosen = -1;
+		for (int r = 0; r < resolutions.length; r++) {
+			int n = resolutions[r];
+			double error = measure("engine, quad sampling " + n + "x" + n, () -> {
+				double e = relError(AnalyticFormFactor.quadToPolygon(floor, up,
+						ceiling, n), AnalyticFormFactor.parallelRectangles(1, 1, 1));
+				e = Math.max(e, relError(AnalyticFormFactor.quadToPolygon(bigFloor,
+						up, bigCeiling, n), AnalyticFormFactor.parallelRectangles(2, 2,
+						1)));
+				e = Math.max(e, relError(AnalyticFormFactor.quadToPolygon(floor, up,
+						wall, n), AnalyticFormFactor.perpendicularRectangles(1, 1, 1)));
+				e = Math.max(e, relError(AnalyticFormFactor.quadToPolygon(floor, up,
+						tallWall, n), AnalyticFormFactor.perpendicularRectangles(1, 1,
+						2)));
+				return e;
+			}, Double.POSITIVE_INFINITY, timeBudgets[r]);
+			if (chosen < 0 && error <= ENGINE_BUDGET) {
+				chosen = n;
+			}
+		}
+
+		if (chosen < 0) {
+			failures++;
+			System.out.printf("no engine resolution meets the %.0e budget  FAIL%n",
+					ENGINE_BUDGET);
+			return;
+		}
+		System.out.printf("fastest resolution within %.0e budget: %dx%d%n",
+				ENGINE_BUDGET, chosen, chosen);
+
+		// form factor matrix of a 2x2x2 box meshed into 1 m patches
+		int samples = chosen;
+		List<Patch> patches = createRoom(2, 2, 2, 1.0);
+		double[] area = new double[patches.size()];
+		Arrays.fill(area, 1.0);
+		double[][][] formFactors = new double[1][][];
+		measure("engine " + chosen + "x" + chosen + ", meshed box row sums", () -> {
+			formFactors[0] = engineFormFactors(patches, samples);
+			return AnalyticFormFactor.maxRowSumError(formFactors[0]);
+		}, 1e-9, 300);
+		measure("engine " + chosen + "x" + chosen + ", meshed box reciprocity",
+				() -> maxReciprocityError(formFactors[0], area), ENGINE_BUDGET *
+				AnalyticFormFactor.parallelRectangles(1, 1, 1), 1);
+	}
+
+	/**
+	 * Builds the form factor matrix of a set of patches with the quad sampling
+	 * engine. Patches in the same plane cannot see each other.
+	 * @param patches
+	 * @param samples
+	 * @return form factor matrix, [i][j] is from patch i to patch j
+	 */
+	private static double[][] engineFormFactors(List<Patch> patches, int samples) {
+		int n = patches.size();
+		double[][] formFactors = new double[n][n];
+
+		for (int i = 0; i < n; i++) {
+			Patch from = patches.get(i);
+			for (int j = 0; j < n; j++) {
+				Patch to = patches.get(j);
+				if (Utils.doublesAreEqual(from.getNormal().dotProduct(
+						to.getCenter().subtract(from.getCenter())), 0, 1e-9)) {
+					continue;
+				}
+				formFactors[i][j] = AnalyticFormFactor.quadToPolygon(
+						orderedCoords(from), from.getNormal(), orderedCoords(to),
+						samples);
+			}
+		}
+		return formFactors;
+	}
+
+	private static double maxReciprocityError(double[][] formFactors,
+			double[] area) {
+		double maxError = 0.0;
+		for (int i = 0; i < formFactors.length; i++) {
+			for (int j = 0; j < formFactors.length; j++) {
+				maxError = Math.max(maxError, Math.abs(area[i] * formFactors[i][j] -
+						area[j] * formFactors[j][i]));
+			}
+		}
+		return maxError;
+	}
+
+	private static double relError(double value, double exact) {
+		return Math.abs(value - exact) / exact;
+	}
+
+	/**
+	 * Creates 6 patches with dummy coords, for solver cases that only need
+	 * reflectance.
+	 * @param reflectance
+	 * @return list of patches
+	 */
+	private static List<Patch> createBoxPatches(double reflectance) {
+		List<Patch> patches = new ArrayList<>();
+		Vector3D[] dummyCoords = Utils.getPtsFromCenter(Vector3D.ZERO,
+				Vector3D.PLUS_I, Vector3D.PLUS_J, 1, 1);
+		for (int i = 0; i < 6; i++) {
+			patches.add(new Patch(dummyCoords, Vector3D.PLUS_K, reflectance));
+		}
+		return patches;
+	}
+
+	/**
+	 * Generates all orderings of 0 .. n - 1.
+	 * @param n
+	 * @return list of permutations
+	 */
+	private static List<int[]> permutations(int n) {
+		List<int[]> result = new ArrayList<>();
+		permute(new int[n], new boolean[n], 0, result);
+		return result;
+	}
+
+	private static void permute(int[] current, boolean[] used, int k,
+			List<int[]> result) {
+		if (k == current.length) {
+			result.add(current.clone());
+			return;
+		}
+		for (int i = 0; i < current.length; i++) {
+			if (!used[i]) {
+				used[i] = true;
+				current[k] = i;
+				permute(current, used, k + 1, result);
+				used[i] = false;
+			}
+		}
+	}
+
+	/**
+	 * Creates the patches of a closed box room with one corner at the origin,
+	 * normals pointing inward. Faces are added in the order -x, +x, -y, +y, -z,
+	 * +z, so the ceiling patches come last.
+	 * @param lenX
+	 * @param lenY
+	 * @param lenZ
+	 * @param patchLen side length of each patch, must divide the room evenly
+	 * @return list of patches
+	 */
+	private static List<Patch> createRoom(double lenX, double lenY, double lenZ,
+			double patchLen) {
+		List<Patch> patches = new ArrayList<>();
+		Vector3D x = Vector3D.PLUS_I;
+		Vector3D y = Vector3D.PLUS_J;
+		Vector3D z = Vector3D.PLUS_K;
+
+		addFace(patches, new Vector3D(0, lenY / 2, lenZ / 2), y, z, lenY, lenZ,
+				patchLen, x);
+		addFace(patches, new Vector3D(lenX, lenY / 2, lenZ / 2), y, z, lenY, lenZ,
+				patchLen, x.negate());
+		addFace(patches, new Vector3D(lenX / 2, 0, lenZ / 2), x, z, lenX, lenZ,
+				patchLen, y);
+		addFace(patches, new Vector3D(lenX / 2, lenY, lenZ / 2), x, z, lenX, lenZ,
+				patchLen, y.negate());
+		addFace(patches, new Vector3D(lenX / 2, lenY / 2, 0), x, y, lenX, lenY,
+				patchLen, z);
+		addFace(patches, new Vector3D(lenX / 2, lenY / 2, lenZ), x, y, lenX, lenY,
+				patchLen, z.negate());
+		return patches;
+	}
+
+	private static void addFace(List<Patch> patches, Vector3D center,
+			Vector3D axis1, Vector3D axis2, double sideLen1, double sideLen2,
+			double patchLen, Vector3D normal) {
+		int count1 = (int) Math.round(sideLen1 / patchLen);
+		int count2 = (int) Math.round(sideLen2 / patchLen);
+
+		for (int i = 0; i < count1; i++) {
+			for (int j = 0; j < count2; j++) {
+				Vector3D patchCtr = center.add((i + 0.5 - count1 / 2.0) * patchLen,
+						axis1).add((j + 0.5 - count2 / 2.0) * patchLen, axis2);
+				patches.add(new Patch(Utils.getPtsFromCenter(patchCtr, axis1, axis2,
+						patchLen, patchLen), normal, 0.5));
+			}
+		}
+	}
+
+	/**
+	 * Utils.getPtsFromCenter() returns corners in the order (-,-), (-,+), (+,-),
+	 * (+,+). Swaps the last two so they run around the boundary.
+	 * @param p
+	 * @return coords in order around the boundary
+	 */
+	private static Vector3D[] orderedCoords(Patch p) {
+		Vector3D[] c = p.getCoords();
+		return new Vector3D[] {c[0], c[1], c[3], c[2]};
+	}
+}
@@ -0,0 +1,635 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * Calculates illuminance at a batch of sensor points (e.g. a work plane grid)
+ * once the radiosity of every patch in the room is known.
+ * @author zyud
+ *
+ */
+public class SensorGrid {
+	private static final double TOLERANCE = 0.00000025;
+	private static final int MAXDEPTH = 3; // partly shadowed patches split up to 8x8
+	private static final double INSET = 0.01; // corner samples moved 1% to center
+	private static final int FINALSAMPLES = 4; // 4x4 samples at MAXDEPTH
+	private static final int MAXCELLS = 256; // max grid cells along each axis
+	private Vector3D[] points;
+	private Vector3D[] normals; // unit vector pointing to normal of each sensor
+	private int patchCount;
+	private Vector3D[][] patchPolygons; // patch coords in order around boundary
+	private double[] patchCenters; // x, y, z of each patch center
+	private double[] patchNormals; // x, y, z of each patch unit normal
+	private double[][] patchVertices; // x, y, z of each ordered patch coord
+	private double[] patchRadii; // radius of bounding sphere around patch center
+	private double[] gridMin; // lowest corner of the occlusion grid
+	private double[] cellSize; // size of a grid cell along x, y, z
+	private int[] gridDims; // number of grid cells along x, y, z
+	private int[][] gridCells; // IDs of patches overlapping each grid cell
+
+	/**
+	 * @param points location of each sensor
+	 * @param normals normal of each sensor, same length as points
+	 * @param patches all patches of the room
+	 */
+	public SensorGrid(Vector3D[] points, Vector3D[] normals, List<Patch> patches) {
+		if (points.length != normals.length) {
+			throw new IllegalArgumentException("points and normals must have the "
+					+ "same length");
+		}
+		this.points = points;
+		this.normals = new Vector3D[normals.length];
+		for (int i = 0; i < normals.length; i++) {
+			this.normals[i] = normals[i].normalize();
+		}
+		patchCount = patches.size();
+		patchPolygons = new Vector3D[patchCount][];
+		patchCenters = new double[3 * patchCount];
+		patchNormals = new double[3 * patchCount];
+		patchVertices = new double[patchCount][];
+		patchRadii = new double[patchCount];
+
+		for (int j = 0; j < patchCount; j++) {
+			Patch p = patches.get(j);
+			Vector3D normal = p.getNormal().normalize();
+			patchPolygons[j] = orderAroundCenter(p.getCoords(), p.getCenter(),
+					normal);
+			patchCenters[3 * j] = p.getCenter().getX();
+			patchCenters[3 * j + 1] = p.getCenter().getY();
+			patchCenters[3 * j + 2] = p.getCenter().getZ();
+			patchNormals[3 * j] = normal.getX();
+			patchNormals[3 * j + 1] = normal.getY();
+			patchNormals[3 * j + 2] = normal.getZ();
+			patchVertices[j] = new double[3 * patchPolygons[j].length];
+			for (int i = 0; i < patchPolygons[j].length; i++) {
+				Vector3D pt = patchPolygons[j][i];
+				patchVertices[j][3 * i] = pt.getX();
+				patchVertices[j][3 * i + 1] = pt.getY();
+				patchVertices[j][3 * i + 2] = pt.getZ();
+				patchRadii[j] = Math.max(patchRadii[j], pt.distance(p.getCenter()));
+			}
+		}
+		createGrid();
+	}
+
+	/**
+	 * Creates a uniform grid over the bounding box of all patches, with about one
+	 * cell per patch. Each cell lists the patches whose bounding box overlaps it,
+	 * so an occlusion ray only tests patches in the cells it passes through.
+	 */
+	private void createGrid() {
+		double[] gridMax = new double[3];
+		gridMin = new double[3];
+		Arrays.fill(gridMin, Double.POSITIVE_INFINITY);
+		Arrays.fill(gridMax, Double.NEGATIVE_INFINITY);
+		for (int j = 0; j < patchCount; j++) {
+			for (int i = 0; i < patchVertices[j].length; i++) {
+				gridMin[i % 3] = Math.min(gridMin[i % 3], patchVertices[j][i]);
+				gridMax[i % 3] = Math.max(gridMax[i % 3], patchVertices[j][i]);
+			}
+		}
+
+		// pad bounds so patches on the boundary fall inside the grid
+		double maxExtent = 0.0;
+		for (int a = 0; a < 3; a++) {
+			maxExtent = Math.max(maxExtent, gridMax[a] - gridMin[a]);
+		}
+		double pad = maxExtent * 0.001 + TOLERANCE;
+		double volume = 1.0;
+		for (int a = 0; a < 3; a++) {
+			gridMin[a] -= pad;
+			gridMax[a] += pad;
+			volume *= gridMax[a] - gridMin[a];
+		}
+
+		double cellEdge = Math.cbrt(volume / Math.max(patchCount, 1));
+		gridDims = new int[3];
+		cellSize = new double[3];
+		int totalCells = 1;
+		for (int a = 0; a < 3; a++) {
+			double extent = gridMax[a] - gridMin[a];
+			gridDims[a] = Math.min(MAXCELLS, Math.max(1, (int) Math.ceil(extent /
+					cellEdge)));
+			cellSize[a] = extent / gridDims[a];
+			totalCells *= gridDims[a];
+		}
+
+		// add each patch to every cell its bounding box overlaps
+		ArrayList<ArrayList<Integer>> cellLists = new ArrayList<>(totalCells);
+		for (int c = 0; c < totalCells; c++) {
+			cellLists.add(new ArrayList<>());
+		}
+		int[] lo = new int[3];
+		int[] hi = new int[3];
+		for (int j = 0; j < patchCount; j++) {
+			for (int a = 0; a < 3; a++) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for (int i = a; i < patchVertices[j].length; i += 3) {
+					min = Math.min(min, patchVertices[j][i]);
+					max = Math.max(max, patchVertices[j][i]);
+				}
+				lo[a] = cellIndex(min - TOLERANCE, a);
+				hi[a] = cellIndex(max + TOLERANCE, a);
+			}
+			for (int x = lo[0]; x <= hi[0]; x++) {
+				for (int y = lo[1]; y <= hi[1]; y++) {
+					for (int z = lo[2]; z <= hi[2]; z++) {
+						cellLists.get(cellId(x, y, z)).add(j);
+					}
+				}
+			}
+		}
+
+		gridCells = new int[totalCells][];
+		for (int c = 0; c < totalCells; c++) {
+			ArrayList<Integer> list = cellLists.get(c);
+			gridCells[c] = new int[list.size()];
+			for (int i = 0; i < list.size(); i++) {
+				gridCells[c][i] = list.get(i);
+			}
+		}
+	}
+
+	private int cellIndex(double coord, int axis) {
+		int i = (int) Math.floor((coord - gridMin[axis]) / cellSize[axis]);
+		return Math.min(gridDims[axis] - 1, Math.max(0, i));
+	}
+
+	private int cellId(int x, int y, int z) {
+		return (x * gridDims[1] + y) * gridDims[2] + z;
+	}
+
+	/**
+	 * Creates upward facing sensors on a horizontal work plane, spaced evenly
+	 * along x and y.
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @param spacing distance between sensors, e.g. 0.5
+	 * @param height z value of the work plane, e.g. 0.76
+	 * @param patches all patches of the room
+	 * @return SensorGrid covering the work plane
+	 */
+	public static SensorGrid workPlane(double minX, double minY, double maxX,
+			double maxY, double spacing, double height, List<Patch> patches) {
+		if (!(spacing > 0) || !(maxX >= minX) || !(maxY >= minY)) {
+			throw new IllegalArgumentException("spacing must be positive and max "
+					+ "must not be less than min");
+		}
+		// counted in doubles first so a huge grid cannot overflow an int
+		double total = (Math.floor((maxX - minX) / spacing + TOLERANCE) + 1) *
+				(Math.floor((maxY - minY) / spacing + TOLERANCE) + 1);
+		if (!(total <= Integer.MAX_VALUE - 8)) {
+			throw new IllegalArgumentException("too many sensors for one grid");
+		}
+		int countX = (int) Math.floor((maxX - minX) / spacing + TOLERANCE) + 1;
+		int countY = (int) Math.floor((maxY - minY) / spacing + TOLERANCE) + 1;
+		Vector3D[] points = new Vector3D[countX * countY];
+		Vector3D[] normals = new Vector3D[countX * countY];
+
+		int k = 0;
+		for (int i = 0; i < countX; i++) {
+			for (int j = 0; j < countY; j++) {
+				points[k] = new Vector3D(minX + i * spacing, minY + j * spacing,
+						height);
+				normals[k] = Vector3D.PLUS_K;
+				k++;
+			}
+		}
+		return new SensorGrid(points, normals, patches);
+	}
+
+	/**
+	 * Calculates illuminance at every sensor, in parallel.
+	 * @param radiosity radiosity of each patch, in the same order as the patches
+	 * @return illuminance at each sensor
+	 */
+	public double[] calcIlluminance(double[] radiosity) {
+		if (radiosity.length != patchCount) {
+			throw new IllegalArgumentException("radiosity must have one value per "
+					+ "patch");
+		}
+		double[] illuminance = new double[points.length];
+
+		IntStream.range(0, points.length).parallel().forEach(i ->
+				illuminance[i] = calcSensorIlluminance(i, radiosity));
+
+		return illuminance;
+	}
+
+	/**
+	 * Calculates illuminance at a single sensor as the sum over all patches of
+	 * radiosity times the visible part of the point to patch form factor.
+	 * @param sensorId
+	 * @param radiosity
+	 * @return illuminance at the sensor
+	 */
+	private double calcSensorIlluminance(int sensorId, double[] radiosity) {
+		Vector3D pt = points[sensorId];
+		Vector3D normal = normals[sensorId];
+		double px = pt.getX();
+		double py = pt.getY();
+		double pz = pt.getZ();
+		Mailbox mailbox = new Mailbox(patchCount);
+
+		double sum = 0.0;
+		for (int j = 0; j < patchCount; j++) {
+			double cx = patchCenters[3 * j] - px;
+			double cy = patchCenters[3 * j + 1] - py;
+			double cz = patchCenters[3 * j + 2] - pz;
+
+			// skip dark patches, patches fully behind the sensor and patches
+			// facing away from the sensor
+			if (radiosity[j] == 0) {
+				continue;
+			}
+			if (normal.getX() * cx + normal.getY() * cy + normal.getZ() * cz <=
+					-1 * patchRadii[j]) {
+				continue;
+			}
+			if (-1 * (patchNormals[3 * j] * cx + patchNormals[3 * j + 1] * cy +
+					patchNormals[3 * j + 2] * cz) <= TOLERANCE) {
+				continue;
+			}
+			sum += radiosity[j] * calcVisibleFormFactor(pt, normal,
+					patchPolygons[j], j, 0, mailbox);
+		}
+		return sum;
+	}
+
+	/**
+	 * Calculates the form factor from a sensor to the unoccluded part of a patch
+	 * polygon. Visibility is sampled at the center and near each corner. The full
+	 * form factor is used only if every sample in front of the sensor is
+	 * visible, and 0 only if a single occluder blocks all 4 exact corners, which
+	 * by convexity hides the whole polygon. Otherwise the polygon is split into
+	 * 4 and each part is handled the same way, up to MAXDEPTH times, after which
+	 * the form factor is scaled by the visible fraction of a finer grid of
+	 * samples (see calcVisibleFraction()).
+	 * So blocked samples never zero a polygon that is partly visible. Remaining
+	 * error comes from shadow edges inside the sub-polygons left at MAXDEPTH,
+	 * resolved to 1/128 of the patch side for edges running along its sides and
+	 * about 1/32 otherwise, and from occluders that slip between all 5 samples of
+	 * a polygon whose samples are all visible.
+	 * @param pt sensor location
+	 * @param normal sensor normal
+	 * @param polygon patch polygon or part of it, in order around its boundary
+	 * @param targetId ID of the patch the polygon belongs to
+	 * @param depth number of times the patch has been split
+	 * @param mailbox
+	 * @return visible form factor from the sensor to the polygon
+	 */
+	private double calcVisibleFormFactor(Vector3D pt, Vector3D normal,
+			Vector3D[] polygon, int targetId, int depth, Mailbox mailbox) {
+		Vector3D center = Vector3D.ZERO;
+		for (Vector3D v : polygon) {
+			center = center.add(v);
+		}
+		center = center.scalarMultiply(1.0 / polygon.length);
+
+		int frontCount = 0;
+		int visibleCount = 0;
+		int centerOccluder = -1;
+		for (int i = -1; i < polygon.length; i++) {
+			Vector3D sample = i < 0 ? center : polygon[i].add(INSET,
+					center.subtract(polygon[i]));
+			// samples behind the sensor are clipped off the form factor anyway
+			if (normal.dotProduct(sample.subtract(pt)) <= 0) {
+				continue;
+			}
+			frontCount++;
+			int occluder = findOccluder(pt, sample, targetId, mailbox);
+			if (occluder < 0) {
+				visibleCount++;
+			} else if (i < 0) {
+				centerOccluder = occluder;
+			}
+		}
+
+		if (frontCount == 0 && AnalyticFormFactor.pointToPolygon(pt, normal,
+				polygon) == 0) {
+			return 0.0; // fully behind the sensor
+		}
+		if (frontCount > 0 && visibleCount == frontCount) {
+			return AnalyticFormFactor.pointToPolygon(pt, normal, polygon);
+		}
+		if (visibleCount == 0 && centerOccluder >= 0 && coversPolygon(pt,
+				polygon, centerOccluder)) {
+			return 0.0;
+		}
+		if (polygon.length != 4) {
+			if (frontCount == 0) {
+				return 0.0; // only a sliver is in front and none of it was tested
+			}
+			return AnalyticFormFactor.pointToPolygon(pt, normal, polygon) *
+					visibleCount / frontCount;
+		}
+		if (depth == MAXDEPTH) {
+			return AnalyticFormFactor.pointToPolygon(pt, normal, polygon) *
+					calcVisibleFraction(pt, normal, polygon, targetId, mailbox);
+		}
+
+		// split quad into 4 at the midpoints of its sides
+		Vector3D[] mid = new Vector3D[4];
+		for (int i = 0; i < 4; i++) {
+			mid[i] = polygon[i].add(polygon[(i + 1) % 4]).scalarMultiply(0.5);
+		}
+		double sum = 0.0;
+		for (int i = 0; i < 4; i++) {
+			Vector3D[] part = {polygon[i], mid[i], center, mid[(i + 3) % 4]};
+			sum += calcVisibleFormFactor(pt, normal, part, targetId, depth + 1,
+					mailbox);
+		}
+		return sum;
+	}
+
+	/**
+	 * Estimates the visible fraction of a quad from FINALSAMPLES x FINALSAMPLES
+	 * samples, one per cell of an equal grid, offset within each cell so they
+	 * form a rotated grid.
+	 * @param pt sensor location
+	 * @param normal sensor normal
+	 * @param quad vertices in order around its boundary
+	 * @param targetId ID of the patch the quad belongs to
+	 * @param mailbox
+	 * @return fraction of the samples in front of the sensor that are visible, 0
+	 * if none are in front
+	 */
+	private double calcVisibleFraction(Vector3D pt, Vector3D normal,
+			Vector3D[] quad, int targetId, Mailbox mailbox) {
+		int frontCount = 0;
+		int visibleCount = 0;
+
+		for (int i = 0; i < FINALSAMPLES; i++) {
+			for (int j = 0; j < FINALSAMPLES; j++) {
+				// rotated grid, so no two samples share a u or v value and edges
+				// along either side are resolved to 1 / FINALSAMPLES^2
+				double u = (i + (j + 0.5) / FINALSAMPLES) / FINALSAMPLES;
+				double v = (j + (i + 0.5) / FINALSAMPLES) / FINALSAMPLES;
+				Vector3D sample = new Vector3D((1 - u) * (1 - v), quad[0],
+						u * (1 - v), quad[1], u * v, quad[2], (1 - u) * v, quad[3]);
+				if (normal.dotProduct(sample.subtract(pt)) <= 0) {
+					continue;
+				}
+				frontCount++;
+				if (findOccluder(pt, sample, targetId, mailbox) < 0) {
+					visibleCount++;
+				}
+			}
+		}
+		return frontCount == 0 ? 0.0 : (double) visibleCount / frontCount;
+	}
+
+	/**
+	 * Evaluates whether one patch blocks the segments from a sensor to every
+	 * corner of a polygon. Since both are convex, it then blocks the whole
+	 * polygon.
+	 * @param pt sensor location
+	 * @param polygon
+	 * @param occluderId
+	 * @return true if the whole polygon is blocked, false otherwise
+	 */
+	private boolean coversPolygon(Vector3D pt, Vector3D[] polygon,
+			int occluderId) {
+		double[] f = {pt.getX(), pt.getY(), pt.getZ()};
+		double[] d = new double[3];
+
+		for (Vector3D corner : polygon) {
+			d[0] = corner.getX() - f[0];
+			d[1] = corner.getY() - f[1];
+			d[2] = corner.getZ() - f[2];
+			if (!intersectsPatch(f, d, occluderId)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds a patch blocking the segment from a sensor to a point on another
+	 * patch. Walks the grid cells along the segment and tests only the patches
+	 * listed in them.
+	 * @param from sensor location
+	 * @param to point on the target patch
+	 * @param targetId ID of the target patch, not tested against itself
+	 * @param mailbox records patches already tested for this segment
+	 * @return ID of a blocking patch, -1 if the segment is not blocked
+	 */
+	private int findOccluder(Vector3D from, Vector3D to, int targetId,
+			Mailbox mailbox) {
+		double[] f = {from.getX(), from.getY(), from.getZ()};
+		double[] d = {to.getX() - f[0], to.getY() - f[1], to.getZ() - f[2]};
+
+		// clip the segment to the grid bounds
+		double tEnter = 0.0;
+		double tExit = 1.0;
+		for (int a = 0; a < 3; a++) {
+			double max = gridMin[a] + gridDims[a] * cellSize[a];
+			if (d[a] == 0) {
+				if (f[a] < gridMin[a] || f[a] > max) {
+					return -1;
+				}
+				continue;
+			}
+			double t1 = (gridMin[a] - f[a]) / d[a];
+			double t2 = (max - f[a]) / d[a];
+			tEnter = Math.max(tEnter, Math.min(t1, t2));
+			tExit = Math.min(tExit, Math.max(t1, t2));
+		}
+		if (tEnter > tExit) {
+			return -1;
+		}
+
+		// walk the cells along the segment
+		int[] cell = new int[3];
+		int[] step = new int[3];
+		double[] tMax = new double[3];
+		double[] tDelta = new double[3];
+		for (int a = 0; a < 3; a++) {
+			cell[a] = cellIndex(f[a] + tEnter * d[a], a);
+			if (d[a] > 0) {
+				step[a] = 1;
+				tMax[a] = (gridMin[a] + (cell[a] + 1) * cellSize[a] - f[a]) / d[a];
+				tDelta[a] = cellSize[a] / d[a];
+			} else if (d[a] < 0) {
+				step[a] = -1;
+				tMax[a] = (gridMin[a] + cell[a] * cellSize[a] - f[a]) / d[a];
+				tDelta[a] = -1 * cellSize[a] / d[a];
+			} else {
+				tMax[a] = Double.POSITIVE_INFINITY;
+				tDelta[a] = Double.POSITIVE_INFINITY;
+			}
+		}
+
+		mailbox.rayId++;
+		while (true) {
+			for (int k : gridCells[cellId(cell[0], cell[1], cell[2])]) {
+				if (k == targetId || mailbox.lastRay[k] == mailbox.rayId) {
+					continue;
+				}
+				mailbox.lastRay[k] = mailbox.rayId;
+				if (intersectsPatch(f, d, k)) {
+					return k;
+				}
+			}
+
+			int a = tMax[0] < tMax[1] ? (tMax[0] < tMax[2] ? 0 : 2) :
+				(tMax[1] < tMax[2] ? 1 : 2);
+			if (tMax[a] > tExit) {
+				return -1;
+			}
+			cell[a] += step[a];
+			if (cell[a] < 0 || cell[a] >= gridDims[a]) {
+				return -1;
+			}
+			tMax[a] += tDelta[a];
+		}
+	}
+
+	/**
+	 * Evaluates whether the segment from + t * dir, 0 < t < 1, crosses a patch.
+	 * @param f segment start x, y, z
+	 * @param d segment direction x, y, z
+	 * @param k patch ID
+	 * @return true if it crosses, false otherwise
+	 */
+	private boolean intersectsPatch(double[] f, double[] d, int k) {
+		double nx = patchNormals[3 * k];
+		double ny = patchNormals[3 * k + 1];
+		double nz = patchNormals[3 * k + 2];
+
+		// intersect segment with patch plane
+		double denom = nx * d[0] + ny * d[1] + nz * d[2];
+		if (Utils.doublesAreEqual(denom, 0, TOLERANCE)) {
+			return false; // segment is parallel to patch
+		}
+		double t = (nx * (patchCenters[3 * k] - f[0]) + ny * (patchCenters[3 * k + 1]
+				- f[1]) + nz * (patchCenters[3 * k + 2] - f[2])) / denom;
+		if (t <= TOLERANCE || t >= 1 - TOLERANCE) {
+			return false;
+		}
+		double hx = f[0] + t * d[0];
+		double hy = f[1] + t * d[1];
+		double hz = f[2] + t * d[2];
+
+		// hit pt must be on the inner side of every edge of the convex polygon
+		double[] v = patchVertices[k];
+		int n = v.length / 3;
+		for (int i = 0; i < n; i++) {
+			int next = (i + 1) % n;
+			double ex = v[3 * next] - v[3 * i];
+			double ey = v[3 * next + 1] - v[3 * i + 1];
+			double ez = v[3 * next + 2] - v[3 * i + 2];
+			double wx = hx - v[3 * i];
+			double wy = hy - v[3 * i + 1];
+			double wz = hz - v[3 * i + 2];
+			double side = nx * (ey * wz - ez * wy) + ny * (ez * wx - ex * wz) +
+					nz * (ex * wy - ey * wx);
+			if (side < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records which patches were already tested by the current ray, since a patch
+	 * can be listed in several cells along the same ray. One per sensor, so
+	 * sensors can run in parallel.
+	 */
+	private static class Mailbox {
+		private int[] lastRay;
+		private int rayId;
+
+		private Mailbox(int patchCount) {
+			lastRay = new int[patchCount];
+			rayId = 0;
+		}
+	}
+
+	/**
+	 * Sorts the coords of a patch counterclockwise around its normal, since
+	 * coords are not guaranteed to be in order around the boundary (see
+	 * Utils.getPtsFromCenter()).
+	 * @param coords
+	 * @param center
+	 * @param normal
+	 * @return coords in counterclockwise order
+	 */
+	private static Vector3D[] orderAroundCenter(Vector3D[] coords, Vector3D center,
+			Vector3D normal) {
+		Vector3D axis1 = normal.orthogonal();
+		Vector3D axis2 = Vector3D.crossProduct(normal, axis1);
+		Vector3D[] ordered = Arrays.copyOf(coords, coords.length);
+
+		Arrays.sort(ordered, Comparator.comparingDouble(pt -> {
+			Vector3D v = pt.subtract(center);
+			return Math.atan2(v.dotProduct(axis2), v.dotProduct(axis1));
+		}));
+		return ordered;
+	}
+
+	/**
+	 * Writes sensor results to a CSV file, one line per sensor: x, y, z,
+	 * illuminance.
+	 * @param illuminance result of calcIlluminance()
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void writeCsv(double[] illuminance, String fileName) throws IOException {
+		checkLength(illuminance);
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+			for (int i = 0; i < points.length; i++) {
+				writer.write(points[i].getX() + "," + points[i].getY() + "," +
+						points[i].getZ() + "," + illuminance[i]);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Writes sensor results to a binary file: sensor count as an int followed by
+	 * one float per sensor, in the same order as the sensors.
+	 * @param illuminance result of calcIlluminance()
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void writeBinary(double[] illuminance, String fileName)
+			throws IOException {
+		checkLength(illuminance);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName)))) {
+			out.writeInt(points.length);
+			for (double e : illuminance) {
+				out.writeFloat((float) e);
+			}
+		}
+	}
+
+	private void checkLength(double[] illuminance) {
+		if (illuminance.length != points.length) {
+			throw new IllegalArgumentException("illuminance must have one value per "
+					+ "sensor");
+		}
+	}
+
+	public Vector3D[] getPoints() {
+		return points;
+	}
+
+	public Vector3D[] getNormals() {
+		return normals;
+	}
+}